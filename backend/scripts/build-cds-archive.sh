@@ -0,0 +1,47 @@
+#!/bin/sh
+# Builds a Class Data Sharing archive for the backend from a training run.
+# The training run starts the fast-startup profile, runs the warm-up and exits,
+# recording every loaded class; the archive is then dumped from that class list.
+#
+# Usage: scripts/build-cds-archive.sh [path/to/steganography-service.jar] [output dir]
+set -e
+
+JAR=$(cd "$(dirname "${1:-target/steganography-service-0.0.1-SNAPSHOT.jar}")" && pwd)/$(basename "${1:-target/steganography-service-0.0.1-SNAPSHOT.jar}")
+OUT=${2:-target/cds}
+
+rm -rf "$OUT"
+mkdir -p "$OUT/extracted" "$OUT/lib"
+cd "$OUT"
+
+# CDS only archives classes loaded from plain jar files, so unpack the Spring Boot jar
+# and package the application classes as a jar of their own
+(cd extracted && jar xf "$JAR")
+jar cf app.jar -C extracted/BOOT-INF/classes .
+cp extracted/BOOT-INF/lib/*.jar lib/
+rm -rf extracted
+
+# The class path must be identical at dump time and at run time
+CLASSPATH=app.jar
+for lib in lib/*.jar; do
+    CLASSPATH="$CLASSPATH:$lib"
+done
+
+java -XX:DumpLoadedClassList=classes.lst -cp "$CLASSPATH" \
+    -Dspring.profiles.active=fast-startup \
+    -Dstartup.training-run=true \
+    -Dserver.port=0 \
+    -Dspring.datasource.url=jdbc:h2:mem:training \
+    -Dfile.upload-dir="${TMPDIR:-/tmp}/steganography-training" \
+    com.steganography.SteganographyApplication
+
+java -Xshare:dump -XX:SharedClassListFile=classes.lst -XX:SharedArchiveFile=app.jsa -cp "$CLASSPATH"
+
+cat > run.sh <<RUN
+#!/bin/sh
+cd "\$(dirname "\$0")"
+exec java -Xshare:auto -XX:SharedArchiveFile=app.jsa -cp "$CLASSPATH" \\
+    -Dspring.profiles.active=fast-startup "\$@" com.steganography.SteganographyApplication
+RUN
+chmod +x run.sh
+
+echo "CDS archive written to $OUT/app.jsa, start the service with $OUT/run.sh"
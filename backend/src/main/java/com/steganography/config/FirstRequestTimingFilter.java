@@ -0,0 +1,65 @@
+package com.steganography.config;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Measures the latency of the first API request served after the instance became ready.
+ * Warm-up and probe traffic before that point is not counted.
+ */
+@Component
+public class FirstRequestTimingFilter extends OncePerRequestFilter {
+
+    private final AtomicBoolean ready = new AtomicBoolean();
+
+    private final AtomicBoolean recorded = new AtomicBoolean();
+
+    // NaN until the first request has been served
+    private volatile double firstRequestSeconds = Double.NaN;
+
+    public FirstRequestTimingFilter(MeterRegistry meterRegistry) {
+        Gauge.builder("startup.first.request.latency", this, filter -> filter.firstRequestSeconds)
+            .description("Latency of the first API request after the instance became ready, NaN until served")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        ready.set(true);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !ready.get() || recorded.get() || !request.getRequestURI().startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long latency = System.nanoTime() - start;
+            if (recorded.compareAndSet(false, true)) {
+                firstRequestSeconds = latency / 1_000_000_000.0;
+                System.out.println("First request after startup (" + request.getMethod() + " "
+                    + request.getRequestURI() + ") took " + (latency / 1_000_000) + " ms");
+            }
+        }
+    }
+}
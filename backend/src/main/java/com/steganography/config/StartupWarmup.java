@@ -0,0 +1,291 @@
+package com.steganography.config;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.steganography.model.SteganographyImage;
+import com.steganography.repository.SteganographyImageRepository;
+import com.steganography.service.SteganographyService;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Warms up a freshly started instance before it reports ready.
+ * Application runners complete before the ApplicationReadyEvent, so the readiness probe
+ * stays OUT_OF_SERVICE until the ImageIO registry is scanned, the JIT has seen the
+ * encode and decode paths of the service and the database, MVC and JSON stacks have served a request.
+ * The records and files created by the warm-up are removed again, its decodes are counted
+ * in the fingerprint metrics.
+ */
+@Component
+@Lazy(false)
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final String WARMUP_MESSAGE = "Warm-up message for the steganography service";
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private SteganographyImageRepository steganographyImageRepository;
+
+    @Autowired
+    private SteganographyService steganographyService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${startup.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${startup.warmup.iterations:10}")
+    private int iterations;
+
+    @Value("${startup.warmup.image-size:256}")
+    private int imageSize;
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    // Exit after warm-up, used to record the class list for a CDS archive
+    @Value("${startup.training-run:false}")
+    private boolean trainingRun;
+
+    private final AtomicLong warmupMillis = new AtomicLong();
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        Gauge.builder("startup.warmup.time", warmupMillis, value -> value.get() / 1000.0)
+            .description("Time spent in the synthetic warm-up")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+
+        if (enabled) {
+            long start = System.nanoTime();
+            scanImageIORegistry();
+            exerciseService();
+            exerciseDatabase();
+            exerciseHttp();
+            warmupMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            System.out.println("Startup warm-up completed in " + warmupMillis.get() + " ms");
+        }
+
+        if (trainingRun) {
+            System.out.println("Training run finished, exiting");
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
+    /**
+     * Reports the time from JVM start until the instance is ready to take traffic.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        System.out.println("Instance ready " + ManagementFactory.getRuntimeMXBean().getUptime()
+            + " ms after JVM start (warm-up "
+            + warmupMillis.get() + " ms)");
+    }
+
+    /**
+     * Scans for ImageIO plugins and instantiates the readers and writers used by the service,
+     * so the first upload does not pay for service loading.
+     */
+    private void scanImageIORegistry() {
+        ImageIO.scanForPlugins();
+        for (String format : new String[] {"png", "jpeg", "bmp"}) {
+            ImageIO.getImageReadersByFormatName(format).forEachRemaining(reader -> reader.dispose());
+            ImageIO.getImageWritersByFormatName(format).forEachRemaining(writer -> writer.dispose());
+        }
+    }
+
+    /**
+     * Runs encode and decode through the service on a synthetic image until the request path is compiled.
+     * Every encoded image is decoded twice, once answered from the fingerprint index and once
+     * with a byte appended, so the hash misses and the message is extracted from the image data.
+     *
+     * @throws IOException If the synthetic image could not be written or read
+     */
+    private void exerciseService() throws IOException {
+        // The pixel encoder needs one pixel per message bit, including the 8 bit terminator
+        int minimumSize = (int) Math.ceil(Math.sqrt((WARMUP_MESSAGE.length() + 1) * 8.0));
+        int size = Math.max(imageSize, minimumSize);
+        if (size != imageSize) {
+            System.out.println("Warm-up image size " + imageSize + " is too small for the message, using " + size);
+        }
+
+        Random random = new Random(0);
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, random.nextInt(0xffffff));
+            }
+        }
+
+        // The web server is up but not ready yet, so new uploads are the warm-up's own
+        Set<Path> existingUploads = listUploads();
+        try {
+            for (int i = 0; i < iterations; i++) {
+                for (String format : new String[] {"png", "jpg"}) {
+                    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                    ImageIO.write(image, format, outputStream);
+                    SteganographyImage encoded = steganographyService.encodeMessage(
+                        new WarmupFile("warmup." + format, outputStream.toByteArray()), WARMUP_MESSAGE);
+
+                    try {
+                        byte[] encodedBytes = Files.readAllBytes(Paths.get(encoded.getEncodedImagePath()));
+                        checkDecode(new WarmupFile(encoded.getFileName(), encodedBytes));
+                        checkDecode(new WarmupFile(encoded.getFileName(), Arrays.copyOf(encodedBytes, encodedBytes.length + 1)));
+                    } finally {
+                        steganographyImageRepository.delete(encoded);
+                    }
+                }
+            }
+        } finally {
+            deleteNewUploads(existingUploads);
+        }
+    }
+
+    private void checkDecode(MultipartFile file) throws IOException {
+        if (!WARMUP_MESSAGE.equals(steganographyService.decodeMessage(file))) {
+            throw new IllegalStateException("Warm-up round trip returned a different message");
+        }
+    }
+
+    private Set<Path> listUploads() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(uploadDir).toAbsolutePath().normalize())) {
+            return files.collect(Collectors.toSet());
+        }
+    }
+
+    private void deleteNewUploads(Set<Path> existingUploads) throws IOException {
+        for (Path upload : listUploads()) {
+            if (!existingUploads.contains(upload)) {
+                Files.deleteIfExists(upload);
+            }
+        }
+    }
+
+    /**
+     * Opens the connection pool and the JPA metamodel with cheap queries,
+     * including the fingerprint lookup every decode runs.
+     */
+    private void exerciseDatabase() {
+        steganographyImageRepository.count();
+        steganographyImageRepository.findFirstByEncodedImageHash("");
+    }
+
+    /**
+     * Sends a request through the web server so the DispatcherServlet, the controller
+     * and JSON serialization are initialized.
+     */
+    private void exerciseHttp() {
+        if (!(applicationContext instanceof WebServerApplicationContext)) {
+            return;
+        }
+
+        int port = ((WebServerApplicationContext) applicationContext).getWebServer().getPort();
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/steganography/history"))
+            .timeout(Duration.ofSeconds(30))
+            .GET()
+            .build();
+        try {
+            httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            System.out.println("Warm-up request failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * In-memory upload handed to the service by the warm-up.
+     */
+    private static class WarmupFile implements MultipartFile {
+
+        private final String fileName;
+
+        private final byte[] content;
+
+        WarmupFile(String fileName, byte[] content) {
+            this.fileName = fileName;
+            this.content = content;
+        }
+
+        @Override
+        public String getName() {
+            return "file";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return fileName;
+        }
+
+        @Override
+        public String getContentType() {
+            return null;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return content.length == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return content.length;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            return content;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(content);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            Files.write(dest.toPath(), content);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -112,11 +113,12 @@ public class SteganographyController {
             Path path = Paths.get(steganographyImage.getEncodedImagePath());
             ByteArrayResource resource = new ByteArrayResource(Files.readAllBytes(path));
             
-            // Always set content type to PNG image for steganography
-            String contentType = "image/png";
+            // PNG, or JPEG for images encoded in the DCT domain
+            MediaType contentType = MediaTypeFactory.getMediaType(steganographyImage.getFileName())
+                .orElse(MediaType.IMAGE_PNG);
             
             return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType(contentType))
+                .contentType(contentType)
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + 
                         steganographyImage.getFileName() + "\"")
                 .body(resource);
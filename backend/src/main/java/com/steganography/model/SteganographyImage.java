@@ -2,10 +2,12 @@ package com.steganography.model;
 
 import java.time.LocalDateTime;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Lob;
 import javax.persistence.Table;
 
@@ -13,7 +15,9 @@ import javax.persistence.Table;
  * Entity class to store information about steganography operations.
  */
 @Entity
-@Table(name = "steganography_images")
+@Table(name = "steganography_images", indexes = {
+    @Index(name = "idx_encoded_image_hash", columnList = "encodedImageHash")
+})
 public class SteganographyImage {
     
     @Id
@@ -26,6 +30,10 @@ public class SteganographyImage {
     
     private String encodedImagePath;
     
+    // SHA-256 of the encoded image file, used to recognize our own images on decode
+    @Column(length = 64)
+    private String encodedImageHash;
+    
     @Lob
     private String message;
     
@@ -78,6 +86,14 @@ public class SteganographyImage {
         this.encodedImagePath = encodedImagePath;
     }
 
+    public String getEncodedImageHash() {
+        return encodedImageHash;
+    }
+
+    public void setEncodedImageHash(String encodedImageHash) {
+        this.encodedImageHash = encodedImageHash;
+    }
+
     public String getMessage() {
         return message;
     }
@@ -97,6 +113,6 @@ public class SteganographyImage {
     @Override
     public String toString() {
         return "SteganographyImage [id=" + id + ", fileName=" + fileName + ", originalImagePath=" + originalImagePath
-                + ", encodedImagePath=" + encodedImagePath + ", message=" + message + ", createdAt=" + createdAt + "]";
+                + ", encodedImagePath=" + encodedImagePath + ", encodedImageHash=" + encodedImageHash + ", message=" + message + ", createdAt=" + createdAt + "]";
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.steganography.repository;
 
 import java.util.List;
+import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -26,4 +27,12 @@ public interface SteganographyImageRepository extends JpaRepository<Steganograph
      * @return A list of all steganography images ordered by creation date
      */
     List<SteganographyImage> findAllByOrderByCreatedAtDesc();
+    
+    /**
+     * Find a steganography operation by the hash of its encoded image.
+     * 
+     * @param encodedImageHash The SHA-256 hash of the encoded image, in hex
+     * @return The first steganography image with this hash, if any
+     */
+    Optional<SteganographyImage> findFirstByEncodedImageHash(String encodedImageHash);
 }
\ No newline at end of file
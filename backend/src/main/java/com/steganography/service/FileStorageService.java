@@ -75,9 +75,21 @@ public class FileStorageService {
      * @return The path where the encoded image is stored
      */
     public String storeEncodedImage(String originalImagePath, byte[] imageData) {
+        // Use .png extension for encoded images to ensure lossless format
+        return storeEncodedImage(originalImagePath, imageData, "png");
+    }
+    
+    /**
+     * Stores an encoded image with the given extension and returns the file path.
+     * 
+     * @param originalImagePath The path of the original image
+     * @param imageData The image data to store
+     * @param extension The file extension of the encoded image, without the dot
+     * @return The path where the encoded image is stored
+     */
+    public String storeEncodedImage(String originalImagePath, byte[] imageData, String extension) {
         try {
-            // Always use .png extension for encoded images to ensure lossless format
-            String encodedFileName = "encoded_" + UUID.randomUUID().toString() + ".png";
+            String encodedFileName = "encoded_" + UUID.randomUUID().toString() + "." + extension;
             
             Path encodedImagePath = this.fileStorageLocation.resolve(encodedFileName);
             Files.write(encodedImagePath, imageData);
@@ -4,19 +4,36 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
 import javax.imageio.ImageIO;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import com.steganography.model.SteganographyImage;
 import com.steganography.repository.SteganographyImageRepository;
+import com.steganography.util.JpegSteganographyUtil;
 import com.steganography.util.SteganographyUtil;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 /**
  * Service for steganography operations.
  */
@@ -29,6 +46,51 @@ public class SteganographyService {
     @Autowired
     private FileStorageService fileStorageService;
     
+    private static final String JPEG_MODE_DCT = "dct";
+    
+    // How JPEG uploads are encoded: "dct" embeds in the JPEG itself, "png" converts to PNG
+    @Value("${steganography.jpeg-mode:dct}")
+    private String jpegMode;
+    
+    @Autowired
+    private MeterRegistry meterRegistry;
+    
+    private Counter fingerprintHits;
+    
+    private Counter fingerprintMisses;
+    
+    private Counter fingerprintSavedTime;
+    
+    private Timer extractionTimer;
+    
+    /**
+     * Registers the decode metrics.
+     */
+    @PostConstruct
+    public void registerMetrics() {
+        fingerprintHits = Counter.builder("steganography.decode.fingerprint")
+            .description("Decodes answered from the encoded image fingerprint index")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        fingerprintMisses = Counter.builder("steganography.decode.fingerprint")
+            .description("Decodes answered from the encoded image fingerprint index")
+            .tag("result", "miss")
+            .register(meterRegistry);
+        fingerprintSavedTime = Counter.builder("steganography.decode.fingerprint.saved")
+            .description("Estimated decode time saved by fingerprint hits")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        extractionTimer = Timer.builder("steganography.decode.extraction")
+            .description("Time spent extracting messages from image data")
+            .register(meterRegistry);
+        Gauge.builder("steganography.decode.fingerprint.hit.ratio", this, service -> {
+                double total = service.fingerprintHits.count() + service.fingerprintMisses.count();
+                return total == 0 ? 0 : service.fingerprintHits.count() / total;
+            })
+            .description("Share of decodes answered from the fingerprint index")
+            .register(meterRegistry);
+    }
+    
     /**
      * Encodes a message into an image.
      * 
@@ -45,12 +107,62 @@ public class SteganographyService {
         // Determine if we need to convert the image format
         boolean isJpeg = "jpg".equalsIgnoreCase(fileExtension) || "jpeg".equalsIgnoreCase(fileExtension);
         
-        // Always use PNG as output format - this ensures lossless storage of the steganography data
-        String outputFormat = "png";
-        
         // Store the original image - this is just for reference
         String originalImagePath = fileStorageService.storeFile(file);
         
+        byte[] encodedImageBytes = null;
+        String outputFormat = "png";
+        
+        // Embed directly in the DCT coefficients of JPEG images, keeping them at their original size
+        if (isJpeg && JPEG_MODE_DCT.equalsIgnoreCase(jpegMode)) {
+            byte[] jpegBytes = Files.readAllBytes(Paths.get(originalImagePath));
+            if (JpegSteganographyUtil.isSupportedJpeg(jpegBytes)) {
+                try {
+                    encodedImageBytes = JpegSteganographyUtil.encodeMessage(jpegBytes, message);
+                    outputFormat = "jpg";
+                } catch (IllegalArgumentException e) {
+                    // The DCT coefficients hold far fewer bits than the pixels
+                    System.out.println("Cannot embed in the JPEG (" + e.getMessage() + "), falling back to PNG conversion");
+                }
+            } else {
+                System.out.println("JPEG is not sequential Huffman coded, falling back to PNG conversion");
+            }
+        }
+        
+        if (encodedImageBytes == null) {
+            encodedImageBytes = encodeAsPng(originalImagePath, message, isJpeg);
+        }
+        
+        // Store the encoded image
+        String encodedImagePath = fileStorageService.storeEncodedImage(originalImagePath, encodedImageBytes, outputFormat);
+        
+        // Create a proper filename for the result, using the extension of the output format
+        String resultFileName = originalFileName.substring(0, originalFileName.lastIndexOf(".")) + "." + outputFormat;
+        
+        // Create and save a record in the database
+        SteganographyImage steganographyImage = new SteganographyImage(
+            resultFileName,
+            originalImagePath,
+            encodedImagePath,
+            message
+        );
+        
+        // Remember the hash of the encoded image so decoding it again is a lookup
+        steganographyImage.setEncodedImageHash(toHex(newFingerprintDigest().digest(encodedImageBytes)));
+        
+        return steganographyImageRepository.save(steganographyImage);
+    }
+    
+    /**
+     * Encodes a message into the pixels of an image and writes the result as PNG.
+     * 
+     * @param originalImagePath The path of the stored original image
+     * @param message The message to encode
+     * @param isJpeg Whether the original image is a JPEG
+     * @return The encoded image as PNG bytes
+     * @throws IOException If an I/O error occurs
+     */
+    private byte[] encodeAsPng(String originalImagePath, String message, boolean isJpeg) throws IOException {
         // Read the image
         BufferedImage originalImage = ImageIO.read(new File(originalImagePath));
         
@@ -62,31 +174,15 @@ public class SteganographyService {
         // Encode the message
         BufferedImage encodedImage = SteganographyUtil.encodeMessage(originalImage, message);
         
-        // Convert the encoded image to bytes - ALWAYS using PNG format
+        // Convert the encoded image to bytes - using PNG format for lossless storage
         ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-        boolean success = ImageIO.write(encodedImage, outputFormat, outputStream);
+        boolean success = ImageIO.write(encodedImage, "png", outputStream);
         
         if (!success) {
             throw new IOException("Failed to write image as PNG. No appropriate writer found.");
         }
         
-        byte[] encodedImageBytes = outputStream.toByteArray();
-        
-        // Store the encoded image
-        String encodedImagePath = fileStorageService.storeEncodedImage(originalImagePath, encodedImageBytes);
-        
-        // Create a proper filename for the result, always using .png extension
-        String resultFileName = originalFileName.substring(0, originalFileName.lastIndexOf(".")) + ".png";
-        
-        // Create and save a record in the database
-        SteganographyImage steganographyImage = new SteganographyImage(
-            resultFileName, // This is now always a .png filename
-            originalImagePath,
-            encodedImagePath,
-            message
-        );
-        
-        return steganographyImageRepository.save(steganographyImage);
+        return outputStream.toByteArray();
     }
     
     /**
@@ -100,16 +196,64 @@ public class SteganographyService {
         // Get file extension
         String fileExtension = getFileExtension(file.getOriginalFilename());
         
+        boolean isJpeg = "jpg".equalsIgnoreCase(fileExtension) || "jpeg".equalsIgnoreCase(fileExtension);
+        
         // Check if the image format is suitable for steganography
-        if (!SteganographyUtil.isSuitableImageFormat(fileExtension)) {
+        if (!SteganographyUtil.isSuitableImageFormat(fileExtension) && !isJpeg) {
             System.out.println("Warning: " + fileExtension + 
                 " is not an ideal format for steganography. " +
                 "The message might be corrupted due to lossy compression.");
         }
         
+        // Hash the upload while streaming it, without storing it
+        MessageDigest digest = newFingerprintDigest();
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        
+        // Images produced by our own encode are recognized by their hash and need no decoding
+        Optional<SteganographyImage> knownImage =
+            steganographyImageRepository.findFirstByEncodedImageHash(toHex(digest.digest()));
+        if (knownImage.isPresent()) {
+            fingerprintHits.increment();
+            // Estimate the saved time from the average full decode
+            fingerprintSavedTime.increment(extractionTimer.mean(TimeUnit.SECONDS));
+            return knownImage.get().getMessage();
+        }
+        fingerprintMisses.increment();
+        
         // Store the image temporarily
         String imagePath = fileStorageService.storeFile(file);
         
+        Timer.Sample extraction = Timer.start(meterRegistry);
+        try {
+            return extractMessage(imagePath, isJpeg);
+        } finally {
+            extraction.stop(extractionTimer);
+        }
+    }
+    
+    /**
+     * Extracts a hidden message from a stored image.
+     * 
+     * @param imagePath The path of the stored image
+     * @param isJpeg Whether the image is a JPEG
+     * @return The decoded message
+     * @throws IOException If an I/O error occurs
+     */
+    private String extractMessage(String imagePath, boolean isJpeg) throws IOException {
+        // JPEG images encoded in the DCT domain carry the message in their coefficients
+        if (isJpeg) {
+            byte[] jpegBytes = Files.readAllBytes(Paths.get(imagePath));
+            if (JpegSteganographyUtil.isSupportedJpeg(jpegBytes)) {
+                try {
+                    return JpegSteganographyUtil.decodeMessage(jpegBytes);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("No message found in the DCT coefficients, trying the pixels");
+                }
+            }
+        }
+        
         // Read the image
         BufferedImage encodedImage = ImageIO.read(new File(imagePath));
         
@@ -146,6 +290,34 @@ public class SteganographyService {
             .orElseThrow(() -> new RuntimeException("Steganography image not found with id: " + id));
     }
     
+    /**
+     * Creates the digest used to fingerprint encoded images.
+     * 
+     * @return A SHA-256 message digest
+     */
+    private MessageDigest newFingerprintDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    
+    /**
+     * Converts a hash to lower case hex.
+     * 
+     * @param hash The hash bytes
+     * @return The hash in hex
+     */
+    private String toHex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte value : hash) {
+            hex.append(Character.forDigit((value >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(value & 0xf, 16));
+        }
+        return hex.toString();
+    }
+    
     /**
      * Extracts the file extension from a file name.
      * 
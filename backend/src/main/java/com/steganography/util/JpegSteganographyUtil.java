@@ -0,0 +1,747 @@
+package com.steganography.util;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Utility class for steganography in the DCT domain of JPEG images.
+ * The message is hidden in the quantized AC coefficients of a baseline JPEG by parsing
+ * the Huffman coded scan data and changing the appended magnitude bits in place,
+ * so the image is never decoded to pixels and keeps roughly its original size.
+ *
+ * Only coefficients with an absolute value of at least 2 carry a message bit, in the least
+ * significant bit of their magnitude. Changing that bit keeps the coefficient in its Huffman
+ * size category and keeps its sign, so every Huffman code and the bit length of the scan stay
+ * the same and the original tables can be reused.
+ *
+ * The payload starts with a magic number and the message length, so images without
+ * a hidden message are recognized instead of decoding to random text.
+ */
+public class JpegSteganographyUtil {
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_DHT = 0xC4;
+    private static final int MARKER_DRI = 0xDD;
+    private static final int MARKER_SOF0 = 0xC0;
+    private static final int MARKER_SOF1 = 0xC1;
+    private static final int MARKER_RST0 = 0xD0;
+    private static final int MARKER_RST7 = 0xD7;
+    private static final int MARKER_TEM = 0x01;
+
+    // "JSTG", marks JPEG images that carry a message
+    private static final int PAYLOAD_MAGIC = 0x4A535447;
+
+    // Magic number and message length in bytes
+    private static final int PAYLOAD_HEADER_BYTES = 8;
+
+    /**
+     * Checks if the image is a JPEG this class can embed into, i.e. a sequential
+     * Huffman coded JPEG. Progressive and arithmetic coded JPEGs are not supported.
+     *
+     * @param jpegData The JPEG file contents
+     * @return true if the message can be embedded in the DCT domain
+     */
+    public static boolean isSupportedJpeg(byte[] jpegData) {
+        try {
+            return parse(jpegData).scans.size() > 0;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the number of message bytes the DCT coefficients of a JPEG image can hold.
+     *
+     * @param jpegData The JPEG file contents
+     * @return The capacity in bytes of UTF-8 encoded message
+     */
+    public static int getCapacity(byte[] jpegData) {
+        return (int) Math.max(0, countCarrierBits(parse(jpegData)) / 8 - PAYLOAD_HEADER_BYTES);
+    }
+
+    /**
+     * Encodes a message into the DCT coefficients of a JPEG image.
+     * The message is stored as UTF-8 behind a header with a magic number and the message length.
+     *
+     * @param jpegData The original JPEG file contents
+     * @param message The message to hide
+     * @return The JPEG file contents with the hidden message
+     */
+    public static byte[] encodeMessage(byte[] jpegData, String message) {
+        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_HEADER_BYTES + messageBytes.length)
+            .putInt(PAYLOAD_MAGIC)
+            .putInt(messageBytes.length)
+            .put(messageBytes)
+            .array();
+        long payloadBits = payload.length * 8L;
+
+        JpegFile jpeg = parse(jpegData);
+
+        // Check if the image is large enough to hold the message before modifying any coefficient.
+        // This also decodes all entropy coded data, so corrupt images fail here.
+        if (countCarrierBits(jpeg) < payloadBits) {
+            throw new IllegalArgumentException("Image is too small to hide the message");
+        }
+
+        int[] payloadIndex = {0};
+        for (Scan scan : jpeg.scans) {
+            if (payloadIndex[0] < payloadBits) {
+                walkCoefficients(jpeg, scan, (buffer, bitIndex, negative) -> {
+                    // The magnitude of a negative coefficient is stored as the one's complement
+                    setBit(buffer, bitIndex, getBit(payload, payloadIndex[0]) != negative);
+                    payloadIndex[0]++;
+                    return payloadIndex[0] < payloadBits;
+                });
+            }
+        }
+
+        return write(jpegData, jpeg);
+    }
+
+    /**
+     * Decodes a message from the DCT coefficients of a JPEG image.
+     *
+     * @param jpegData The JPEG file contents with the hidden message
+     * @return The hidden message
+     */
+    public static String decodeMessage(byte[] jpegData) {
+        JpegFile jpeg = parse(jpegData);
+        PayloadReader payload = new PayloadReader(jpegData.length);
+
+        for (Scan scan : jpeg.scans) {
+            if (!payload.isFinished()) {
+                walkCoefficients(jpeg, scan, (buffer, bitIndex, negative) ->
+                    payload.append(getBit(buffer, bitIndex) != negative));
+            }
+        }
+
+        if (!payload.isComplete()) {
+            throw new IllegalArgumentException("No hidden message found. The image may be corrupted or not contain a valid hidden message.");
+        }
+        return payload.getMessage();
+    }
+
+    /**
+     * Counts the coefficients that can carry a message bit, without modifying them.
+     *
+     * @param jpeg The parsed JPEG
+     * @return The number of carrier bits
+     */
+    private static long countCarrierBits(JpegFile jpeg) {
+        long[] count = {0};
+        for (Scan scan : jpeg.scans) {
+            walkCoefficients(jpeg, scan, (buffer, bitIndex, negative) -> {
+                count[0]++;
+                return true;
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Parses the markers of a JPEG file up to the end of the image.
+     *
+     * @param data The JPEG file contents
+     * @return The frame, Huffman tables and scans of the image
+     */
+    private static JpegFile parse(byte[] data) {
+        try {
+            return parseMarkers(data);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Out of range offsets and counts in malformed headers
+            throw new IllegalArgumentException("Malformed JPEG image", e);
+        }
+    }
+
+    private static JpegFile parseMarkers(byte[] data) {
+        if (data.length < 4 || (data[0] & 0xff) != 0xFF || (data[1] & 0xff) != MARKER_SOI) {
+            throw new IllegalArgumentException("Not a JPEG image");
+        }
+
+        JpegFile jpeg = new JpegFile();
+        jpeg.data = data;
+        HuffmanTable[] dcTables = new HuffmanTable[4];
+        HuffmanTable[] acTables = new HuffmanTable[4];
+        int restartInterval = 0;
+        int pos = 2;
+
+        while (pos < data.length) {
+            if ((data[pos] & 0xff) != 0xFF) {
+                throw new IllegalArgumentException("Invalid JPEG marker at offset " + pos);
+            }
+            // Skip fill bytes in front of the marker
+            while (pos + 1 < data.length && (data[pos + 1] & 0xff) == 0xFF) {
+                pos++;
+            }
+            if (pos + 1 >= data.length) {
+                break;
+            }
+
+            int marker = data[pos + 1] & 0xff;
+            pos += 2;
+
+            if (marker == MARKER_EOI) {
+                break;
+            }
+            if (marker == MARKER_TEM || (marker >= MARKER_RST0 && marker <= MARKER_RST7)) {
+                continue;
+            }
+
+            int length = readUnsignedShort(data, pos);
+            int segmentStart = pos + 2;
+            int segmentEnd = pos + length;
+            if (length < 2 || segmentEnd > data.length) {
+                throw new IllegalArgumentException("Truncated JPEG segment at offset " + pos);
+            }
+
+            if (marker == MARKER_SOF0 || marker == MARKER_SOF1) {
+                jpeg.frame = parseFrame(data, segmentStart);
+            } else if (isUnsupportedFrame(marker)) {
+                throw new IllegalArgumentException("Only sequential Huffman coded JPEG images are supported");
+            } else if (marker == MARKER_DHT) {
+                parseHuffmanTables(data, segmentStart, segmentEnd, dcTables, acTables);
+            } else if (marker == MARKER_DRI) {
+                restartInterval = readUnsignedShort(data, segmentStart);
+            } else if (marker == MARKER_SOS) {
+                if (jpeg.frame == null) {
+                    throw new IllegalArgumentException("JPEG scan found before the frame header");
+                }
+                Scan scan = parseScanHeader(data, segmentStart, jpeg.frame, dcTables, acTables);
+                scan.restartInterval = restartInterval;
+                scan.start = segmentEnd;
+                scan.end = findEntropyDataEnd(data, segmentEnd);
+                jpeg.scans.add(scan);
+                pos = scan.end;
+                continue;
+            }
+
+            pos = segmentEnd;
+        }
+
+        if (jpeg.frame == null) {
+            throw new IllegalArgumentException("JPEG frame header not found");
+        }
+        return jpeg;
+    }
+
+    private static boolean isUnsupportedFrame(int marker) {
+        // SOF2-SOF15 except DHT, JPG and DAC, i.e. progressive, lossless, hierarchical and arithmetic
+        return marker >= 0xC2 && marker <= 0xCF && marker != MARKER_DHT && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static Frame parseFrame(byte[] data, int pos) {
+        Frame frame = new Frame();
+        frame.height = readUnsignedShort(data, pos + 1);
+        frame.width = readUnsignedShort(data, pos + 3);
+        int componentCount = data[pos + 5] & 0xff;
+
+        if (frame.height == 0 || frame.width == 0) {
+            throw new IllegalArgumentException("JPEG images with deferred dimensions are not supported");
+        }
+        if (componentCount < 1) {
+            throw new IllegalArgumentException("JPEG frame header without components");
+        }
+
+        frame.components = new Component[componentCount];
+        for (int i = 0; i < componentCount; i++) {
+            int offset = pos + 6 + i * 3;
+            Component component = new Component();
+            component.id = data[offset] & 0xff;
+            component.h = (data[offset + 1] >> 4) & 0x0f;
+            component.v = data[offset + 1] & 0x0f;
+            if (component.h < 1 || component.v < 1) {
+                throw new IllegalArgumentException("Invalid JPEG sampling factors");
+            }
+            frame.components[i] = component;
+            frame.maxH = Math.max(frame.maxH, component.h);
+            frame.maxV = Math.max(frame.maxV, component.v);
+        }
+
+        for (Component component : frame.components) {
+            int componentWidth = ceilDiv(frame.width * component.h, frame.maxH);
+            int componentHeight = ceilDiv(frame.height * component.v, frame.maxV);
+            component.blocksPerLine = ceilDiv(componentWidth, 8);
+            component.blocksPerColumn = ceilDiv(componentHeight, 8);
+        }
+        frame.mcusPerLine = ceilDiv(frame.width, 8 * frame.maxH);
+        frame.mcusPerColumn = ceilDiv(frame.height, 8 * frame.maxV);
+        return frame;
+    }
+
+    private static void parseHuffmanTables(byte[] data, int pos, int end, HuffmanTable[] dcTables, HuffmanTable[] acTables) {
+        while (pos < end) {
+            int tableClass = (data[pos] >> 4) & 0x0f;
+            int tableId = data[pos] & 0x0f;
+            if (tableId > 3 || tableClass > 1) {
+                throw new IllegalArgumentException("Invalid JPEG Huffman table");
+            }
+
+            int[] counts = new int[17];
+            int symbolCount = 0;
+            for (int length = 1; length <= 16; length++) {
+                counts[length] = data[pos + length] & 0xff;
+                symbolCount += counts[length];
+            }
+            pos += 17;
+
+            int[] symbols = new int[symbolCount];
+            for (int i = 0; i < symbolCount; i++) {
+                symbols[i] = data[pos + i] & 0xff;
+            }
+            pos += symbolCount;
+
+            // A redefined table only applies to later scans, so replace instead of modifying
+            HuffmanTable table = new HuffmanTable(counts, symbols);
+            if (tableClass == 0) {
+                dcTables[tableId] = table;
+            } else {
+                acTables[tableId] = table;
+            }
+        }
+    }
+
+    private static Scan parseScanHeader(byte[] data, int pos, Frame frame, HuffmanTable[] dcTables, HuffmanTable[] acTables) {
+        int componentCount = data[pos] & 0xff;
+        if (componentCount < 1) {
+            throw new IllegalArgumentException("JPEG scan header without components");
+        }
+        Scan scan = new Scan();
+        scan.components = new Component[componentCount];
+        scan.dcTables = new HuffmanTable[componentCount];
+        scan.acTables = new HuffmanTable[componentCount];
+
+        for (int i = 0; i < componentCount; i++) {
+            int componentId = data[pos + 1 + i * 2] & 0xff;
+            int tables = data[pos + 2 + i * 2] & 0xff;
+            for (Component component : frame.components) {
+                if (component.id == componentId) {
+                    scan.components[i] = component;
+                }
+            }
+            if (scan.components[i] == null) {
+                throw new IllegalArgumentException("JPEG scan references an unknown component");
+            }
+            scan.dcTables[i] = dcTables[(tables >> 4) & 0x03];
+            scan.acTables[i] = acTables[tables & 0x03];
+            if (scan.dcTables[i] == null || scan.acTables[i] == null) {
+                throw new IllegalArgumentException("JPEG scan references an undefined Huffman table");
+            }
+        }
+
+        int spectralStart = data[pos + 1 + componentCount * 2] & 0xff;
+        int spectralEnd = data[pos + 2 + componentCount * 2] & 0xff;
+        if (spectralStart != 0 || spectralEnd != 63) {
+            throw new IllegalArgumentException("Only sequential Huffman coded JPEG images are supported");
+        }
+        return scan;
+    }
+
+    /**
+     * Finds the end of the entropy coded data, i.e. the first marker that is not
+     * a stuffed zero byte or a restart marker.
+     */
+    private static int findEntropyDataEnd(byte[] data, int pos) {
+        while (pos + 1 < data.length) {
+            if ((data[pos] & 0xff) == 0xFF) {
+                int next = data[pos + 1] & 0xff;
+                if (next == 0x00 || (next >= MARKER_RST0 && next <= MARKER_RST7)) {
+                    pos += 2;
+                    continue;
+                }
+                if (next != 0xFF) {
+                    return pos;
+                }
+            }
+            pos++;
+        }
+        return data.length;
+    }
+
+    /**
+     * Splits the entropy coded data of a scan at its restart markers and removes the byte stuffing.
+     */
+    private static void unstuff(byte[] data, Scan scan) {
+        scan.intervals.clear();
+        scan.restartMarkers.clear();
+        ByteArrayOutputStream current = new ByteArrayOutputStream();
+        int pos = scan.start;
+
+        while (pos < scan.end) {
+            int value = data[pos] & 0xff;
+            if (value == 0xFF && pos + 1 < data.length) {
+                int next = data[pos + 1] & 0xff;
+                if (next == 0x00) {
+                    current.write(0xFF);
+                    pos += 2;
+                } else if (next >= MARKER_RST0 && next <= MARKER_RST7) {
+                    scan.intervals.add(current.toByteArray());
+                    scan.restartMarkers.add(next);
+                    current = new ByteArrayOutputStream();
+                    pos += 2;
+                } else {
+                    // Fill byte
+                    pos++;
+                }
+            } else {
+                current.write(value);
+                pos++;
+            }
+        }
+        scan.intervals.add(current.toByteArray());
+    }
+
+    /**
+     * Decodes the Huffman coded blocks of a scan and calls the visitor for every
+     * coefficient that can carry a message bit, in scan order.
+     */
+    private static void walkCoefficients(JpegFile jpeg, Scan scan, CoefficientVisitor visitor) {
+        try {
+            walkScan(jpeg, scan, visitor);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // Malformed entropy data or frame and scan headers that do not match it
+            throw new IllegalArgumentException("Corrupt JPEG entropy data", e);
+        }
+    }
+
+    private static void walkScan(JpegFile jpeg, Scan scan, CoefficientVisitor visitor) {
+        unstuff(jpeg.data, scan);
+        Frame frame = jpeg.frame;
+        boolean interleaved = scan.components.length > 1;
+        int totalUnits = interleaved
+            ? frame.mcusPerLine * frame.mcusPerColumn
+            : scan.components[0].blocksPerLine * scan.components[0].blocksPerColumn;
+        int unitsPerInterval = scan.restartInterval > 0 ? scan.restartInterval : totalUnits;
+
+        int unit = 0;
+        for (byte[] interval : scan.intervals) {
+            BitReader reader = new BitReader(interval);
+            for (int i = 0; i < unitsPerInterval && unit < totalUnits; i++, unit++) {
+                for (int c = 0; c < scan.components.length; c++) {
+                    int blocks = interleaved ? scan.components[c].h * scan.components[c].v : 1;
+                    for (int b = 0; b < blocks; b++) {
+                        if (!walkBlock(reader, scan.dcTables[c], scan.acTables[c], visitor)) {
+                            scan.modified = true;
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+        scan.modified = true;
+    }
+
+    /**
+     * Decodes one 8x8 block.
+     *
+     * @return false if the visitor asked to stop
+     */
+    private static boolean walkBlock(BitReader reader, HuffmanTable dcTable, HuffmanTable acTable, CoefficientVisitor visitor) {
+        int dcSize = dcTable.decode(reader);
+        reader.skip(dcSize);
+
+        int k = 1;
+        while (k < 64) {
+            int symbol = acTable.decode(reader);
+            int run = symbol >> 4;
+            int size = symbol & 0x0f;
+
+            if (size == 0) {
+                if (run != 15) {
+                    // End of block
+                    break;
+                }
+                k += 16;
+                continue;
+            }
+
+            k += run;
+            if (k > 63) {
+                throw new IllegalArgumentException("Corrupt JPEG entropy data");
+            }
+
+            int bitIndex = reader.position;
+            reader.skip(size);
+            if (size >= 2) {
+                // The first magnitude bit is 0 for negative coefficients
+                boolean negative = !getBit(reader.buffer, bitIndex);
+                if (!visitor.visit(reader.buffer, bitIndex + size - 1, negative)) {
+                    return false;
+                }
+            }
+            k++;
+        }
+        return true;
+    }
+
+    /**
+     * Writes the JPEG with the entropy coded data of the modified scans re-stuffed.
+     */
+    private static byte[] write(byte[] data, JpegFile jpeg) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length + 1024);
+        int pos = 0;
+
+        for (Scan scan : jpeg.scans) {
+            if (!scan.modified) {
+                continue;
+            }
+            output.write(data, pos, scan.start - pos);
+            for (int i = 0; i < scan.intervals.size(); i++) {
+                for (byte value : scan.intervals.get(i)) {
+                    output.write(value);
+                    if ((value & 0xff) == 0xFF) {
+                        output.write(0x00);
+                    }
+                }
+                if (i < scan.restartMarkers.size()) {
+                    output.write(0xFF);
+                    output.write(scan.restartMarkers.get(i));
+                }
+            }
+            pos = scan.end;
+        }
+
+        output.write(data, pos, data.length - pos);
+        return output.toByteArray();
+    }
+
+    private static boolean getBit(byte[] buffer, int bitIndex) {
+        return ((buffer[bitIndex >> 3] >> (7 - (bitIndex & 7))) & 1) == 1;
+    }
+
+    private static void setBit(byte[] buffer, int bitIndex, boolean value) {
+        int mask = 1 << (7 - (bitIndex & 7));
+        if (value) {
+            buffer[bitIndex >> 3] |= mask;
+        } else {
+            buffer[bitIndex >> 3] &= ~mask;
+        }
+    }
+
+    private static int readUnsignedShort(byte[] data, int pos) {
+        if (pos + 1 >= data.length) {
+            throw new IllegalArgumentException("Truncated JPEG image");
+        }
+        return ((data[pos] & 0xff) << 8) | (data[pos + 1] & 0xff);
+    }
+
+    private static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * Callback for coefficients that can carry a message bit.
+     */
+    private interface CoefficientVisitor {
+
+        /**
+         * @param buffer The unstuffed entropy coded data
+         * @param bitIndex The index of the last magnitude bit of the coefficient
+         * @param negative Whether the coefficient is negative
+         * @return true to continue with the next coefficient
+         */
+        boolean visit(byte[] buffer, int bitIndex, boolean negative);
+    }
+
+    private static class JpegFile {
+
+        private byte[] data;
+
+        private Frame frame;
+
+        private final List<Scan> scans = new ArrayList<>();
+    }
+
+    private static class Frame {
+
+        private int width;
+
+        private int height;
+
+        private int maxH;
+
+        private int maxV;
+
+        private int mcusPerLine;
+
+        private int mcusPerColumn;
+
+        private Component[] components;
+    }
+
+    private static class Component {
+
+        private int id;
+
+        private int h;
+
+        private int v;
+
+        private int blocksPerLine;
+
+        private int blocksPerColumn;
+    }
+
+    private static class Scan {
+
+        private Component[] components;
+
+        private HuffmanTable[] dcTables;
+
+        private HuffmanTable[] acTables;
+
+        private int restartInterval;
+
+        // Offsets of the entropy coded data in the file
+        private int start;
+
+        private int end;
+
+        private final List<byte[]> intervals = new ArrayList<>();
+
+        private final List<Integer> restartMarkers = new ArrayList<>();
+
+        private boolean modified;
+    }
+
+    /**
+     * Canonical Huffman table as defined by a DHT segment.
+     */
+    private static class HuffmanTable {
+
+        private final int[] minCode = new int[17];
+
+        private final int[] maxCode = new int[17];
+
+        private final int[] valuePointer = new int[17];
+
+        private final int[] symbols;
+
+        HuffmanTable(int[] counts, int[] symbols) {
+            this.symbols = symbols;
+            int code = 0;
+            int index = 0;
+            for (int length = 1; length <= 16; length++) {
+                if (counts[length] == 0) {
+                    maxCode[length] = -1;
+                } else {
+                    valuePointer[length] = index;
+                    minCode[length] = code;
+                    code += counts[length];
+                    index += counts[length];
+                    maxCode[length] = code - 1;
+                }
+                code <<= 1;
+            }
+        }
+
+        int decode(BitReader reader) {
+            int code = 0;
+            for (int length = 1; length <= 16; length++) {
+                code = (code << 1) | reader.readBit();
+                if (code <= maxCode[length]) {
+                    return symbols[valuePointer[length] + code - minCode[length]];
+                }
+            }
+            throw new IllegalArgumentException("Corrupt JPEG entropy data");
+        }
+    }
+
+    /**
+     * Collects the payload bits read from the coefficients and validates the header.
+     */
+    private static class PayloadReader {
+
+        // The message cannot be longer than the image file
+        private final int maxMessageLength;
+
+        private byte[] bytes = new byte[PAYLOAD_HEADER_BYTES];
+
+        private int bitCount;
+
+        private boolean headerRead;
+
+        private boolean invalid;
+
+        PayloadReader(int maxMessageLength) {
+            this.maxMessageLength = maxMessageLength;
+        }
+
+        /**
+         * @param bit The next payload bit
+         * @return true if more bits are needed
+         */
+        boolean append(boolean bit) {
+            setBit(bytes, bitCount++, bit);
+            if (bitCount < bytes.length * 8) {
+                return true;
+            }
+            if (headerRead) {
+                return false;
+            }
+
+            headerRead = true;
+            ByteBuffer header = ByteBuffer.wrap(bytes);
+            int magic = header.getInt();
+            int length = header.getInt();
+            if (magic != PAYLOAD_MAGIC || length < 0 || length > maxMessageLength) {
+                invalid = true;
+                return false;
+            }
+            bytes = Arrays.copyOf(bytes, PAYLOAD_HEADER_BYTES + length);
+            return length > 0;
+        }
+
+        boolean isFinished() {
+            return invalid || (headerRead && bitCount == bytes.length * 8);
+        }
+
+        boolean isComplete() {
+            return !invalid && headerRead && bitCount == bytes.length * 8;
+        }
+
+        String getMessage() {
+            return new String(bytes, PAYLOAD_HEADER_BYTES, bytes.length - PAYLOAD_HEADER_BYTES, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Reads bits from unstuffed entropy coded data, most significant bit first.
+     */
+    private static class BitReader {
+
+        private final byte[] buffer;
+
+        private int position;
+
+        BitReader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readBit() {
+            if (position >= buffer.length * 8) {
+                throw new IllegalArgumentException("Unexpected end of JPEG entropy data");
+            }
+            int bit = (buffer[position >> 3] >> (7 - (position & 7))) & 1;
+            position++;
+            return bit;
+        }
+
+        void skip(int bits) {
+            position += bits;
+            if (position > buffer.length * 8) {
+                throw new IllegalArgumentException("Unexpected end of JPEG entropy data");
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.steganography.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe recorder of request latencies for a single operation.
+ */
+public class LatencyRecorder {
+
+    private long[] latencies = new long[1024];
+
+    private int count;
+
+    private long errors;
+
+    /**
+     * Records the latency of a successful request.
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    public synchronized void record(long nanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+    }
+
+    /**
+     * Records a failed request.
+     */
+    public synchronized void recordError() {
+        errors++;
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Merges the latencies of another recorder into this one.
+     *
+     * @param other The recorder to merge
+     */
+    public synchronized void merge(LatencyRecorder other) {
+        long[] otherLatencies;
+        int otherCount;
+        long otherErrors;
+        synchronized (other) {
+            otherLatencies = other.latencies;
+            otherCount = other.count;
+            otherErrors = other.errors;
+        }
+        for (int i = 0; i < otherCount; i++) {
+            record(otherLatencies[i]);
+        }
+        errors += otherErrors;
+    }
+
+    /**
+     * Summarizes the recorded latencies.
+     *
+     * @param elapsedSeconds The length of the measurement window
+     * @return Count, errors, throughput and p50/p95/p99/max latency in milliseconds
+     */
+    public synchronized Map<String, Object> summarize(double elapsedSeconds) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", count);
+        summary.put("errors", errors);
+        summary.put("throughputPerSecond", elapsedSeconds > 0 ? count / elapsedSeconds : 0.0);
+        summary.put("p50Ms", toMillis(percentile(sorted, 50)));
+        summary.put("p95Ms", toMillis(percentile(sorted, 95)));
+        summary.put("p99Ms", toMillis(percentile(sorted, 99)));
+        summary.put("maxMs", toMillis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+        return summary;
+    }
+
+    /**
+     * Gets a percentile using the nearest-rank method.
+     *
+     * @param sorted The sorted latencies
+     * @param percentile The percentile between 0 and 100
+     * @return The latency at the percentile, or 0 if nothing was recorded
+     */
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
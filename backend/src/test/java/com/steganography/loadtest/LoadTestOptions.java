@@ -0,0 +1,252 @@
+package com.steganography.loadtest;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line options for the load test harness.
+ * Options are passed as --name=value, for example:
+ * --concurrency=16 --duration-seconds=120 --image-sizes=640x480:3,1920x1080:1
+ */
+public class LoadTestOptions {
+
+    private int concurrency = 8;
+
+    private int warmupSeconds = 10;
+
+    private int durationSeconds = 60;
+
+    private int messageLength = 256;
+
+    private long seed = 42L;
+
+    // Weighted image sizes, e.g. 640x480 with weight 3
+    private List<ImageSize> imageSizes = parseImageSizes("256x256:4,800x600:3,1920x1080:1");
+
+    // Upload formats the encode traffic is spread across
+    private List<String> formats = Collections.singletonList("png");
+
+    // Weighted operation mix
+    private Map<Operation, Integer> operationMix = parseOperationMix("encode:3,decode:3,download:3,history:1");
+
+    // Share of decode requests sent with a changed file, so they miss the fingerprint index and run the full extraction
+    private double decodeMissRatio = 0.5;
+
+    private Path reportPath = Paths.get("target", "loadtest-report.json");
+
+    // Regression gate thresholds, zero disables the check
+    private double minThroughput = 0;
+
+    private double maxP99Millis = 0;
+
+    private double maxErrorRate = 0.01;
+
+    /**
+     * Parses the command line arguments into options.
+     *
+     * @param args The command line arguments
+     * @return The parsed options
+     */
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+
+            String name = arg.substring(2, arg.indexOf("="));
+            String value = arg.substring(arg.indexOf("=") + 1);
+
+            switch (name) {
+                case "concurrency":
+                    options.concurrency = Integer.parseInt(value);
+                    break;
+                case "warmup-seconds":
+                    options.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "duration-seconds":
+                    options.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "message-length":
+                    options.messageLength = Integer.parseInt(value);
+                    break;
+                case "seed":
+                    options.seed = Long.parseLong(value);
+                    break;
+                case "image-sizes":
+                    options.imageSizes = parseImageSizes(value);
+                    break;
+                case "formats":
+                    options.formats = Arrays.asList(value.toLowerCase().split(","));
+                    break;
+                case "mix":
+                    options.operationMix = parseOperationMix(value);
+                    break;
+                case "decode-miss-ratio":
+                    options.decodeMissRatio = Double.parseDouble(value);
+                    break;
+                case "report":
+                    options.reportPath = Paths.get(value);
+                    break;
+                case "min-throughput":
+                    options.minThroughput = Double.parseDouble(value);
+                    break;
+                case "max-p99-ms":
+                    options.maxP99Millis = Double.parseDouble(value);
+                    break;
+                case "max-error-rate":
+                    options.maxErrorRate = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+
+        if (options.concurrency < 1 || options.durationSeconds < 1 || options.warmupSeconds < 0) {
+            throw new IllegalArgumentException("Concurrency and duration must be positive, warm-up must not be negative");
+        }
+
+        if (options.decodeMissRatio < 0 || options.decodeMissRatio > 1) {
+            throw new IllegalArgumentException("The decode miss ratio must be between 0 and 1");
+        }
+
+        return options;
+    }
+
+    /**
+     * Parses a weighted list of image sizes such as "640x480:3,1920x1080:1".
+     *
+     * @param value The option value
+     * @return The image sizes
+     */
+    private static List<ImageSize> parseImageSizes(String value) {
+        List<ImageSize> sizes = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            String[] dimensions = parts[0].toLowerCase().split("x");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            sizes.add(new ImageSize(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), weight));
+        }
+        return sizes;
+    }
+
+    /**
+     * Parses a weighted operation mix such as "encode:3,decode:3,download:3,history:1".
+     *
+     * @param value The option value
+     * @return The operation weights
+     */
+    private static Map<Operation, Integer> parseOperationMix(String value) {
+        Map<Operation, Integer> mix = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            Operation operation = Operation.valueOf(parts[0].toUpperCase());
+            mix.put(operation, parts.length > 1 ? Integer.parseInt(parts[1]) : 1);
+        }
+        if (mix.getOrDefault(Operation.ENCODE, 0) <= 0) {
+            throw new IllegalArgumentException("The operation mix must include encode traffic");
+        }
+        return mix;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getMessageLength() {
+        return messageLength;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public List<ImageSize> getImageSizes() {
+        return imageSizes;
+    }
+
+    public List<String> getFormats() {
+        return formats;
+    }
+
+    public Map<Operation, Integer> getOperationMix() {
+        return operationMix;
+    }
+
+    public double getDecodeMissRatio() {
+        return decodeMissRatio;
+    }
+
+    public Path getReportPath() {
+        return reportPath;
+    }
+
+    public double getMinThroughput() {
+        return minThroughput;
+    }
+
+    public double getMaxP99Millis() {
+        return maxP99Millis;
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    /**
+     * The endpoints driven by the load test.
+     */
+    public enum Operation {
+        ENCODE, DECODE, DOWNLOAD, HISTORY
+    }
+
+    /**
+     * An image size with its weight in the traffic mix.
+     */
+    public static class ImageSize {
+
+        private final int width;
+
+        private final int height;
+
+        private final int weight;
+
+        public ImageSize(int width, int height, int weight) {
+            this.width = width;
+            this.height = height;
+            this.weight = weight;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        @Override
+        public String toString() {
+            return width + "x" + height;
+        }
+    }
+}
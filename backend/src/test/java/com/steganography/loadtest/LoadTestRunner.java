@@ -0,0 +1,584 @@
+package com.steganography.loadtest;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.steganography.SteganographyApplication;
+import com.steganography.loadtest.LoadTestOptions.ImageSize;
+import com.steganography.loadtest.LoadTestOptions.Operation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * End-to-end HTTP load test for the steganography REST API.
+ * Boots the application in-process on a random port with a temporary upload directory
+ * and an in-memory database, drives a weighted mix of encode, decode, download and history
+ * requests, and writes latency, throughput and heap/GC statistics as a JSON report.
+ * Part of the decode traffic uploads a changed copy of an encoded image, so it misses the
+ * fingerprint index and the regression gate still covers the full message extraction.
+ * The process exits with status 1 when a configured regression threshold is missed.
+ *
+ * Run with:
+ * mvn -Ploadtest test-compile exec:java -Dexec.args="--concurrency=16 --duration-seconds=120"
+ */
+public class LoadTestRunner {
+
+    private static final String API_PATH = "/api/steganography";
+
+    // Cap on the encoded images kept around as decode payloads
+    private static final int MAX_DECODE_SAMPLES = 64;
+
+    private final LoadTestOptions options;
+
+    private final HttpClient httpClient;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String baseUrl;
+
+    private final List<UploadImage> uploadImages = new ArrayList<>();
+
+    private final List<EncodedSample> encodedSamples = new CopyOnWriteArrayList<>();
+
+    private final Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+
+    private final MeterRegistry meterRegistry;
+
+    private volatile boolean measuring;
+
+    public LoadTestRunner(LoadTestOptions options, int port, MeterRegistry meterRegistry) {
+        this.options = options;
+        this.meterRegistry = meterRegistry;
+        this.baseUrl = "http://localhost:" + port + API_PATH;
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        Path uploadDir = Files.createTempDirectory("steganography-loadtest");
+
+        // Devtools reads this before the environment exists, a restart would re-run this main method
+        System.setProperty("spring.devtools.restart.enabled", "false");
+
+        // Command line properties take precedence over application.properties
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(SteganographyApplication.class)
+            .run(
+                "--server.port=0",
+                "--file.upload-dir=" + uploadDir,
+                "--spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.h2.console.enabled=false");
+
+        int exitCode;
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            exitCode = new LoadTestRunner(options, port, context.getBean(MeterRegistry.class)).run();
+        } finally {
+            SpringApplication.exit(context);
+            deleteRecursively(uploadDir);
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Runs the warm-up and measurement phases and writes the report.
+     *
+     * @return The process exit code, 1 if a regression threshold was missed
+     * @throws Exception If the load test could not be run
+     */
+    public int run() throws Exception {
+        prepareUploadImages();
+        seedEncodedSamples();
+
+        ExecutorService workers = Executors.newFixedThreadPool(options.getConcurrency());
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+        long measureEnd = warmupEnd + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+
+        for (int i = 0; i < options.getConcurrency(); i++) {
+            workers.submit(() -> driveTraffic(measureEnd));
+        }
+
+        System.out.println("Load test warming up for " + options.getWarmupSeconds() + "s");
+        sleepUntil(warmupEnd);
+
+        JvmSnapshot before = JvmSnapshot.take();
+        double hitsBefore = fingerprintCount("hit");
+        double missesBefore = fingerprintCount("miss");
+        long measureStart = System.nanoTime();
+        measuring = true;
+        System.out.println("Load test measuring for " + options.getDurationSeconds() + "s");
+        sleepUntil(measureEnd);
+        measuring = false;
+        double elapsedSeconds = (System.nanoTime() - measureStart) / 1_000_000_000.0;
+        JvmSnapshot after = JvmSnapshot.take();
+        long fingerprintHits = (long) (fingerprintCount("hit") - hitsBefore);
+        long fingerprintMisses = (long) (fingerprintCount("miss") - missesBefore);
+
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+
+        Map<String, Object> report = buildReport(elapsedSeconds, before, after);
+        Map<String, Object> fingerprint = new LinkedHashMap<>();
+        fingerprint.put("hits", fingerprintHits);
+        fingerprint.put("misses", fingerprintMisses);
+        report.put("decodeFingerprint", fingerprint);
+        List<String> failures = checkThresholds(report);
+        report.put("thresholdFailures", failures);
+
+        String json = objectMapper.enable(SerializationFeature.INDENT_OUTPUT).writeValueAsString(report);
+        if (options.getReportPath().getParent() != null) {
+            Files.createDirectories(options.getReportPath().getParent());
+        }
+        Files.write(options.getReportPath(), json.getBytes(StandardCharsets.UTF_8));
+        System.out.println(json);
+        System.out.println("Load test report written to " + options.getReportPath().toAbsolutePath());
+
+        for (String failure : failures) {
+            System.out.println("Regression threshold missed: " + failure);
+        }
+        return failures.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Worker loop that issues requests until the deadline.
+     *
+     * @param deadline The System.nanoTime() value to stop at
+     */
+    private void driveTraffic(long deadline) {
+        while (System.nanoTime() < deadline) {
+            Operation operation = pickOperation();
+            boolean recording = measuring;
+            long start = System.nanoTime();
+            try {
+                boolean success = execute(operation);
+                long latency = System.nanoTime() - start;
+                if (recording) {
+                    if (success) {
+                        recorders.get(operation).record(latency);
+                    } else {
+                        recorders.get(operation).recordError();
+                    }
+                }
+            } catch (Exception e) {
+                if (recording) {
+                    recorders.get(operation).recordError();
+                }
+            }
+        }
+    }
+
+    /**
+     * Executes a single request of the given operation.
+     *
+     * @param operation The operation to execute
+     * @return true if the server answered with a 2xx status
+     * @throws Exception If the request failed
+     */
+    private boolean execute(Operation operation) throws Exception {
+        switch (operation) {
+            case ENCODE:
+                return encode(pickWeighted(uploadImages)) != null;
+            case DECODE: {
+                EncodedSample sample = pickSample();
+                boolean miss = ThreadLocalRandom.current().nextDouble() < options.getDecodeMissRatio();
+                MultipartBody body = new MultipartBody()
+                    .addFile("file", sample.fileName, contentTypeFor(sample.fileName), miss ? sample.changedBytes : sample.bytes);
+                HttpResponse<byte[]> response = send(body.toRequest(baseUrl + "/decode"));
+                return isSuccess(response);
+            }
+            case DOWNLOAD: {
+                EncodedSample sample = pickSample();
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/download/" + sample.id)).GET().build();
+                return isSuccess(send(request));
+            }
+            case HISTORY: {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/history")).GET().build();
+                return isSuccess(send(request));
+            }
+            default:
+                throw new IllegalStateException("Unknown operation " + operation);
+        }
+    }
+
+    /**
+     * Encodes a random message into the upload image and remembers the result as a decode sample.
+     *
+     * @param image The image to upload
+     * @return The encoded sample, or null if the request failed
+     * @throws Exception If the request failed
+     */
+    private EncodedSample encode(UploadImage image) throws Exception {
+        MultipartBody body = new MultipartBody()
+            .addFile("file", image.fileName, contentTypeFor(image.fileName), image.bytes)
+            .addField("message", randomMessage(options.getMessageLength()));
+        HttpResponse<byte[]> response = send(body.toRequest(baseUrl + "/encode"));
+        if (!isSuccess(response)) {
+            return null;
+        }
+
+        JsonNode json = objectMapper.readTree(response.body());
+        EncodedSample sample = new EncodedSample(json.get("id").asLong(), json.get("fileName").asText(), null);
+        if (encodedSamples.size() < MAX_DECODE_SAMPLES) {
+            HttpRequest download = HttpRequest.newBuilder(URI.create(baseUrl + "/download/" + sample.id)).GET().build();
+            HttpResponse<byte[]> downloaded = send(download);
+            if (isSuccess(downloaded)) {
+                sample = new EncodedSample(sample.id, sample.fileName, downloaded.body());
+                encodedSamples.add(sample);
+            }
+        }
+        return sample;
+    }
+
+    /**
+     * Encodes every upload image once so decode and download traffic has targets from the start.
+     *
+     * @throws Exception If the application rejected the seed requests
+     */
+    private void seedEncodedSamples() throws Exception {
+        for (UploadImage image : uploadImages) {
+            if (encode(image) == null) {
+                throw new IllegalStateException("Seed encode request failed for " + image.fileName);
+            }
+        }
+    }
+
+    /**
+     * Generates one upload image per configured size and format.
+     *
+     * @throws IOException If an image could not be written
+     */
+    private void prepareUploadImages() throws IOException {
+        Random random = new Random(options.getSeed());
+        for (ImageSize size : options.getImageSizes()) {
+            for (String format : options.getFormats()) {
+                BufferedImage image = new BufferedImage(size.getWidth(), size.getHeight(), BufferedImage.TYPE_INT_RGB);
+                for (int y = 0; y < size.getHeight(); y++) {
+                    for (int x = 0; x < size.getWidth(); x++) {
+                        // Gradient with noise, so compressed sizes resemble photos rather than flat fills
+                        int red = (x * 255 / size.getWidth() + random.nextInt(16)) & 0xff;
+                        int green = (y * 255 / size.getHeight() + random.nextInt(16)) & 0xff;
+                        int blue = random.nextInt(256);
+                        image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+                    }
+                }
+
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                if (!ImageIO.write(image, format, outputStream)) {
+                    throw new IOException("No ImageIO writer for format " + format);
+                }
+                String fileName = "loadtest_" + size + "." + format;
+                uploadImages.add(new UploadImage(fileName, outputStream.toByteArray(), size.getWeight()));
+            }
+        }
+    }
+
+    private Map<String, Object> buildReport(double elapsedSeconds, JvmSnapshot before, JvmSnapshot after) {
+        LatencyRecorder overall = new LatencyRecorder();
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Map.Entry<Operation, LatencyRecorder> entry : recorders.entrySet()) {
+            operations.put(entry.getKey().name().toLowerCase(), entry.getValue().summarize(elapsedSeconds));
+            overall.merge(entry.getValue());
+        }
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("concurrency", options.getConcurrency());
+        config.put("warmupSeconds", options.getWarmupSeconds());
+        config.put("durationSeconds", options.getDurationSeconds());
+        config.put("messageLength", options.getMessageLength());
+        config.put("imageSizes", options.getImageSizes().toString());
+        config.put("formats", options.getFormats());
+        config.put("mix", options.getOperationMix().toString());
+        config.put("decodeMissRatio", options.getDecodeMissRatio());
+
+        Map<String, Object> overallSummary = overall.summarize(elapsedSeconds);
+        long total = overall.getCount() + overall.getErrors();
+        overallSummary.put("errorRate", total == 0 ? 0.0 : (double) overall.getErrors() / total);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("overall", overallSummary);
+        report.put("operations", operations);
+        report.put("jvm", after.diff(before));
+        return report;
+    }
+
+    private List<String> checkThresholds(Map<String, Object> report) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> overall = (Map<String, Object>) report.get("overall");
+        double throughput = (Double) overall.get("throughputPerSecond");
+        double p99 = (Double) overall.get("p99Ms");
+        double errorRate = (Double) overall.get("errorRate");
+
+        List<String> failures = new ArrayList<>();
+        if (options.getMinThroughput() > 0 && throughput < options.getMinThroughput()) {
+            failures.add("throughput " + throughput + "/s below minimum " + options.getMinThroughput() + "/s");
+        }
+        if (options.getMaxP99Millis() > 0 && p99 > options.getMaxP99Millis()) {
+            failures.add("p99 latency " + p99 + "ms above maximum " + options.getMaxP99Millis() + "ms");
+        }
+        if (errorRate > options.getMaxErrorRate()) {
+            failures.add("error rate " + errorRate + " above maximum " + options.getMaxErrorRate());
+        }
+        return failures;
+    }
+
+    private Operation pickOperation() {
+        int totalWeight = 0;
+        for (int weight : options.getOperationMix().values()) {
+            totalWeight += weight;
+        }
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<Operation, Integer> entry : options.getOperationMix().entrySet()) {
+            pick -= entry.getValue();
+            if (pick < 0) {
+                return entry.getKey();
+            }
+        }
+        return Operation.ENCODE;
+    }
+
+    private UploadImage pickWeighted(List<UploadImage> images) {
+        int totalWeight = 0;
+        for (UploadImage image : images) {
+            totalWeight += image.weight;
+        }
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (UploadImage image : images) {
+            pick -= image.weight;
+            if (pick < 0) {
+                return image;
+            }
+        }
+        return images.get(0);
+    }
+
+    /**
+     * Reads the server side fingerprint counter of the decode endpoint.
+     *
+     * @param result The counter tag, hit or miss
+     * @return The number of decodes with this result so far
+     */
+    private double fingerprintCount(String result) {
+        Counter counter = meterRegistry.find("steganography.decode.fingerprint").tag("result", result).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    private EncodedSample pickSample() {
+        return encodedSamples.get(ThreadLocalRandom.current().nextInt(encodedSamples.size()));
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException, InterruptedException {
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static boolean isSuccess(HttpResponse<?> response) {
+        return response.statusCode() >= 200 && response.statusCode() < 300;
+    }
+
+    private static String contentTypeFor(String fileName) {
+        String lower = fileName.toLowerCase();
+        if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            return "image/jpeg";
+        }
+        if (lower.endsWith(".bmp")) {
+            return "image/bmp";
+        }
+        return "image/png";
+    }
+
+    private static String randomMessage(int length) {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789 .,!?";
+        StringBuilder message = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            message.append(alphabet.charAt(ThreadLocalRandom.current().nextInt(alphabet.length())));
+        }
+        return message.toString();
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try {
+            Files.walk(directory)
+                .sorted((a, b) -> b.compareTo(a))
+                .forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.out.println("Could not delete load test directory " + directory + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * An image uploaded by encode traffic.
+     */
+    private static class UploadImage {
+
+        private final String fileName;
+
+        private final byte[] bytes;
+
+        private final int weight;
+
+        UploadImage(String fileName, byte[] bytes, int weight) {
+            this.fileName = fileName;
+            this.bytes = bytes;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * An encoded image known to the server, used for decode and download traffic.
+     */
+    private static class EncodedSample {
+
+        private final long id;
+
+        private final String fileName;
+
+        private final byte[] bytes;
+
+        // The image with a zero byte appended after IEND or EOI. Decoders ignore it,
+        // but the hash changes, so decoding it misses the fingerprint index.
+        private final byte[] changedBytes;
+
+        EncodedSample(long id, String fileName, byte[] bytes) {
+            this.id = id;
+            this.fileName = fileName;
+            this.bytes = bytes;
+            this.changedBytes = bytes == null ? null : Arrays.copyOf(bytes, bytes.length + 1);
+        }
+    }
+
+    /**
+     * Builds multipart/form-data request bodies.
+     */
+    private static class MultipartBody {
+
+        private final String boundary = "----loadtest" + UUID.randomUUID().toString().replace("-", "");
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        MultipartBody addField(String name, String value) {
+            writeAscii("--" + boundary + "\r\n");
+            writeAscii("Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n");
+            body.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+            writeAscii("\r\n");
+            return this;
+        }
+
+        MultipartBody addFile(String name, String fileName, String contentType, byte[] content) {
+            writeAscii("--" + boundary + "\r\n");
+            writeAscii("Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + fileName + "\"\r\n");
+            writeAscii("Content-Type: " + contentType + "\r\n\r\n");
+            body.writeBytes(content);
+            writeAscii("\r\n");
+            return this;
+        }
+
+        HttpRequest toRequest(String url) {
+            writeAscii("--" + boundary + "--\r\n");
+            return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        }
+
+        private void writeAscii(String value) {
+            body.writeBytes(value.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Heap and GC counters at a point in time. The load generator shares the JVM with the
+     * application, so these figures include client-side allocation as well.
+     */
+    private static class JvmSnapshot {
+
+        private long gcCount;
+
+        private long gcTimeMillis;
+
+        private long heapUsed;
+
+        private long heapMax;
+
+        private long heapPeak;
+
+        static JvmSnapshot take() {
+            JvmSnapshot snapshot = new JvmSnapshot();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                snapshot.gcCount += Math.max(0, gc.getCollectionCount());
+                snapshot.gcTimeMillis += Math.max(0, gc.getCollectionTime());
+            }
+            snapshot.heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+            snapshot.heapMax = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    snapshot.heapPeak += pool.getPeakUsage().getUsed();
+                    // Peak usage is measured from here on for the next snapshot
+                    pool.resetPeakUsage();
+                }
+            }
+            return snapshot;
+        }
+
+        Map<String, Object> diff(JvmSnapshot before) {
+            Map<String, Object> jvm = new LinkedHashMap<>();
+            jvm.put("gcCount", gcCount - before.gcCount);
+            jvm.put("gcTimeMs", gcTimeMillis - before.gcTimeMillis);
+            jvm.put("heapUsedBytes", heapUsed);
+            jvm.put("heapPeakBytes", heapPeak);
+            jvm.put("heapMaxBytes", heapMax);
+            jvm.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+            return jvm;
+        }
+    }
+}
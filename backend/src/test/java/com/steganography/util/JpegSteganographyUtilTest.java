@@ -0,0 +1,338 @@
+package com.steganography.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Round trip tests for JPEG DCT domain steganography.
+ */
+public class JpegSteganographyUtilTest {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    @Test
+    public void roundTripInterleaved420() throws IOException {
+        BufferedImage image = noiseImage(320, 240, BufferedImage.TYPE_INT_RGB, 1);
+        byte[] jpeg = writeJpeg(image, 0.9f, false, 0);
+
+        // ImageIO writes YCbCr with 2x2 sampled luma in a single interleaved scan
+        assertEquals(0x22, frameSampling(jpeg, 0));
+        assertEquals(1, countMarkers(jpeg, 0xDA));
+
+        assertRoundTrip(jpeg, "Hidden in a 4:2:0 interleaved scan", 320, 240);
+    }
+
+    @Test
+    public void roundTripGrayscale() throws IOException {
+        byte[] jpeg = writeJpeg(noiseImage(203, 97, BufferedImage.TYPE_BYTE_GRAY, 2), 0.9f, false, 0);
+
+        assertRoundTrip(jpeg, "Hidden in a single component scan", 203, 97);
+    }
+
+    @Test
+    public void roundTripWithRestartIntervals() throws IOException {
+        BufferedImage image = noiseImage(257, 131, BufferedImage.TYPE_INT_RGB, 3);
+        for (int interval : new int[] {1, 7}) {
+            byte[] jpeg = writeJpeg(image, 0.9f, false, interval);
+            assertTrue(countMarkers(jpeg, 0xD0) > 0, "Expected RST markers in the scan");
+
+            assertRoundTrip(jpeg, "Hidden across restart interval " + interval, 257, 131);
+        }
+    }
+
+    @Test
+    public void roundTripMultiScanBaseline() throws IOException {
+        byte[] jpeg = multiScanJpeg(96, 64);
+        assertEquals(3, countMarkers(jpeg, 0xDA));
+        assertTrue(JpegSteganographyUtil.isSupportedJpeg(jpeg));
+
+        // Fill the image so the message spans more than one scan
+        String message = "x".repeat(JpegSteganographyUtil.getCapacity(jpeg));
+        byte[] encoded = JpegSteganographyUtil.encodeMessage(jpeg, message);
+
+        assertEquals(message, JpegSteganographyUtil.decodeMessage(encoded));
+        assertNotNull(ImageIO.read(new ByteArrayInputStream(encoded)));
+    }
+
+    @Test
+    public void roundTripRestuffsChangedFfBytes() throws IOException {
+        byte[] jpeg = writeJpeg(noiseImage(640, 480, BufferedImage.TYPE_INT_RGB, 4), 0.95f, false, 0);
+        String message = "Stuffing test ".repeat(JpegSteganographyUtil.getCapacity(jpeg) / 14);
+
+        byte[] encoded = JpegSteganographyUtil.encodeMessage(jpeg, message);
+
+        // The scan keeps its bit length, so the file size only changes when a modified
+        // byte turned into 0xFF or stopped being one and gained or lost a stuffed 0x00
+        assertNotEquals(jpeg.length, encoded.length);
+        assertEquals(message, JpegSteganographyUtil.decodeMessage(encoded));
+        assertDecodable(encoded, 640, 480);
+    }
+
+    @Test
+    public void roundTripUnicodeMessage() throws IOException {
+        byte[] jpeg = writeJpeg(noiseImage(160, 120, BufferedImage.TYPE_INT_RGB, 5), 0.9f, false, 0);
+
+        assertRoundTrip(jpeg, "Ünïcödé ÿÿ ☃", 160, 120);
+    }
+
+    @Test
+    public void capacityLimit() throws IOException {
+        byte[] jpeg = writeJpeg(noiseImage(64, 64, BufferedImage.TYPE_INT_RGB, 6), 0.9f, false, 0);
+        byte[] original = jpeg.clone();
+        int capacity = JpegSteganographyUtil.getCapacity(jpeg);
+        assertTrue(capacity > 0);
+
+        String fits = "a".repeat(capacity);
+        assertEquals(fits, JpegSteganographyUtil.decodeMessage(JpegSteganographyUtil.encodeMessage(jpeg, fits)));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> JpegSteganographyUtil.encodeMessage(jpeg, fits + "a"));
+        assertArrayEquals(original, jpeg);
+    }
+
+    @Test
+    public void smoothImageHasLittleCapacity() throws IOException {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        byte[] jpeg = writeJpeg(image, 0.3f, false, 0);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> JpegSteganographyUtil.encodeMessage(jpeg, "Ten chars!"));
+    }
+
+    @Test
+    public void rejectsProgressiveJpeg() throws IOException {
+        byte[] jpeg = writeJpeg(noiseImage(120, 80, BufferedImage.TYPE_INT_RGB, 7), 0.9f, true, 0);
+        assertEquals(1, countMarkers(jpeg, 0xC2));
+
+        assertFalse(JpegSteganographyUtil.isSupportedJpeg(jpeg));
+        assertThrows(IllegalArgumentException.class, () -> JpegSteganographyUtil.encodeMessage(jpeg, "message"));
+    }
+
+    @Test
+    public void rejectsNonJpegData() {
+        assertFalse(JpegSteganographyUtil.isSupportedJpeg(new byte[] {(byte) 0x89, 'P', 'N', 'G', 0, 0}));
+    }
+
+    @Test
+    public void plainJpegHasNoMessage() throws IOException {
+        for (int seed = 0; seed < 10; seed++) {
+            byte[] jpeg = writeJpeg(noiseImage(320, 240, BufferedImage.TYPE_INT_RGB, 100 + seed), 0.85f, false, 0);
+
+            assertThrows(IllegalArgumentException.class, () -> JpegSteganographyUtil.decodeMessage(jpeg));
+        }
+    }
+
+    @Test
+    public void rejectsZeroComponentHeaders() throws IOException {
+        byte[] jpeg = writeJpeg(noiseImage(64, 48, BufferedImage.TYPE_INT_RGB, 8), 0.9f, false, 0);
+
+        // Component count of the frame header, then of the scan header
+        byte[] noFrameComponents = jpeg.clone();
+        noFrameComponents[markerOffset(jpeg, 0xC0) + 9] = 0;
+        assertFalse(JpegSteganographyUtil.isSupportedJpeg(noFrameComponents));
+        assertMalformed(noFrameComponents);
+
+        byte[] noScanComponents = jpeg.clone();
+        noScanComponents[markerOffset(jpeg, 0xDA) + 4] = 0;
+        assertFalse(JpegSteganographyUtil.isSupportedJpeg(noScanComponents));
+        assertMalformed(noScanComponents);
+    }
+
+    @Test
+    public void rejectsZeroedHeaders() throws IOException {
+        byte[] jpeg = writeJpeg(noiseImage(64, 48, BufferedImage.TYPE_INT_RGB, 9), 0.9f, false, 0);
+
+        for (int marker : new int[] {0xC0, 0xC4, 0xDA}) {
+            byte[] zeroed = jpeg.clone();
+            int offset = markerOffset(jpeg, marker);
+            int length = ((jpeg[offset + 2] & 0xff) << 8) | (jpeg[offset + 3] & 0xff);
+            // Keep the marker and the segment length, zero the contents
+            Arrays.fill(zeroed, offset + 4, offset + 2 + length, (byte) 0);
+            assertMalformed(zeroed);
+        }
+    }
+
+    @Test
+    public void truncatedJpegOnlyThrowsIllegalArgument() throws IOException {
+        byte[] jpeg = writeJpeg(noiseImage(64, 48, BufferedImage.TYPE_INT_RGB, 10), 0.9f, false, 0);
+        int scanStart = markerOffset(jpeg, 0xDA);
+
+        for (int length = 0; length < jpeg.length; length += length < scanStart + 16 ? 1 : 97) {
+            byte[] truncated = Arrays.copyOf(jpeg, length);
+            // A file cut right before EOI is still complete, so only the exception type is checked
+            try {
+                JpegSteganographyUtil.isSupportedJpeg(truncated);
+                JpegSteganographyUtil.decodeMessage(JpegSteganographyUtil.encodeMessage(truncated, "m"));
+            } catch (IllegalArgumentException e) {
+                // Expected for most lengths
+            }
+        }
+    }
+
+    private static void assertMalformed(byte[] jpeg) {
+        assertThrows(IllegalArgumentException.class, () -> JpegSteganographyUtil.getCapacity(jpeg));
+        assertThrows(IllegalArgumentException.class, () -> JpegSteganographyUtil.encodeMessage(jpeg, "message"));
+        assertThrows(IllegalArgumentException.class, () -> JpegSteganographyUtil.decodeMessage(jpeg));
+    }
+
+    private static void assertRoundTrip(byte[] jpeg, String message, int width, int height) throws IOException {
+        assertTrue(JpegSteganographyUtil.isSupportedJpeg(jpeg));
+
+        byte[] encoded = JpegSteganographyUtil.encodeMessage(jpeg, message);
+
+        assertEquals(message, JpegSteganographyUtil.decodeMessage(encoded));
+        assertDecodable(encoded, width, height);
+    }
+
+    private static void assertDecodable(byte[] jpeg, int width, int height) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertNotNull(image);
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+    }
+
+    private static BufferedImage noiseImage(int width, int height, int type, long seed) {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = (x * 3 + random.nextInt(40)) & 0xff;
+                int green = (y * 2 + random.nextInt(40)) & 0xff;
+                int blue = (x + y) & 0xff;
+                image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+            }
+        }
+        return image;
+    }
+
+    private static byte[] writeJpeg(BufferedImage image, float quality, boolean progressive, int restartInterval)
+            throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality);
+        if (progressive) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+
+        IIOMetadata metadata = writer.getDefaultImageMetadata(new ImageTypeSpecifier(image), param);
+        if (restartInterval > 0) {
+            IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+            IIOMetadataNode markerSequence = (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+            IIOMetadataNode dri = new IIOMetadataNode("dri");
+            dri.setAttribute("interval", String.valueOf(restartInterval));
+            markerSequence.insertBefore(dri, markerSequence.getFirstChild());
+            metadata.setFromTree(JPEG_METADATA_FORMAT, root);
+        }
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(imageOutputStream);
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.dispose();
+        }
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Builds a three component baseline JPEG with one non-interleaved scan per component.
+     * ImageIO only writes interleaved baseline scans, so the scans are taken from three
+     * grayscale JPEGs of the same size. Each scan brings its own Huffman tables, which
+     * redefine table 0 in front of it.
+     */
+    private static byte[] multiScanJpeg(int width, int height) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        ByteArrayOutputStream scans = new ByteArrayOutputStream();
+
+        for (int component = 0; component < 3; component++) {
+            byte[] gray = writeJpeg(noiseImage(width, height, BufferedImage.TYPE_BYTE_GRAY, 10 + component), 0.9f, false, 0);
+            int pos = 2;
+            while (pos < gray.length) {
+                int marker = gray[pos + 1] & 0xff;
+                int length = ((gray[pos + 2] & 0xff) << 8) | (gray[pos + 3] & 0xff);
+                if (marker == 0xDB) {
+                    // Quantization table 0 becomes table <component>
+                    byte[] dqt = Arrays.copyOfRange(gray, pos, pos + 2 + length);
+                    dqt[4] = (byte) ((dqt[4] & 0xf0) | component);
+                    header.write(dqt);
+                } else if (marker == 0xC4) {
+                    scans.write(gray, pos, 2 + length);
+                } else if (marker == 0xDA) {
+                    // Scan header for component id <component + 1>, then the entropy coded data up to EOI
+                    byte[] sos = Arrays.copyOfRange(gray, pos, pos + 2 + length);
+                    sos[5] = (byte) (component + 1);
+                    scans.write(sos);
+                    scans.write(gray, pos + 2 + length, gray.length - 2 - (pos + 2 + length));
+                    break;
+                }
+                pos += 2 + length;
+            }
+        }
+
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        jpeg.write(new byte[] {(byte) 0xFF, (byte) 0xD8});
+        jpeg.write(header.toByteArray());
+        jpeg.write(new byte[] {
+            (byte) 0xFF, (byte) 0xC0, 0, 17, 8,
+            (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width, 3,
+            1, 0x11, 0, 2, 0x11, 1, 3, 0x11, 2});
+        jpeg.write(scans.toByteArray());
+        jpeg.write(new byte[] {(byte) 0xFF, (byte) 0xD9});
+        return jpeg.toByteArray();
+    }
+
+    /**
+     * Gets the sampling factors of a component from the SOF0 segment.
+     */
+    private static int frameSampling(byte[] jpeg, int component) {
+        for (int i = 0; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xff) == 0xFF && (jpeg[i + 1] & 0xff) == 0xC0) {
+                return jpeg[i + 11 + component * 3] & 0xff;
+            }
+        }
+        throw new AssertionError("No SOF0 segment");
+    }
+
+    private static int markerOffset(byte[] jpeg, int marker) {
+        for (int i = 0; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xff) == 0xFF && (jpeg[i + 1] & 0xff) == marker) {
+                return i;
+            }
+        }
+        throw new AssertionError("No marker 0x" + Integer.toHexString(marker));
+    }
+
+    private static int countMarkers(byte[] jpeg, int marker) {
+        int count = 0;
+        for (int i = 0; i + 1 < jpeg.length; i++) {
+            if ((jpeg[i] & 0xff) == 0xFF && (jpeg[i + 1] & 0xff) == marker) {
+                count++;
+            }
+        }
+        return count;
+    }
+}